@@ -0,0 +1,88 @@
+package developer;
+
+import java.io.Closeable;
+import java.util.*;
+import java.util.concurrent.Callable;
+
+/**
+ * A property whose value is calculated by read and whose setter is handled by write
+ *
+ * Whenever a dependency captured during the last read changes, read is called again,
+ * our subscriptions are replaced with ones to the dependencies it captured this time and the result becomes our value.
+ */
+public class CalculatedDynamicProperty<T> extends ConcreteDynamicProperty<T>
+{
+	private final Callable<T> m_Read;
+	private final IObserver<T> m_Write;
+
+	public CalculatedDynamicProperty(Callable<T> read, IObserver<T> write)
+	{
+		m_Read = read;
+		m_Write = write;
+	}
+
+	@Override
+	public void setValue(T value)
+	{
+		//execute observe once to do whatever was requested at the base level
+		m_Write.observe(value);
+
+		//propagate the change if appropriate via subscriptions
+		observeAll();
+	}
+
+	/**
+	 * Calculate our value, capturing the dynamic properties accessed along the way
+	 * Subclasses may override this to avoid calling read
+	 *
+	 * @param dependencies - filled with the properties the value depends on, even if read throws
+	 * @return the value
+	 */
+	protected T read(List<IDynamicProperty<Object>> dependencies) throws Exception
+	{
+		DependencyListener.getInstance().startListening();
+		try{
+			return m_Read.call();
+		}
+		finally{
+			DependencyListener.getInstance().stopListening();
+
+			/*
+			 * Due to type erasure we can't use reflection to glean type at runtime.
+			 * The listener stores DPs in an Object collection in order to decouple the Factory and product (DP),
+			 * consequently we have to explicitly cast them when we pull them out of the collection.
+			 */
+			for(int ii=0;ii < DependencyListener.getInstance().getSize();ii++)
+				dependencies.add((IDynamicProperty<Object>)DependencyListener.getInstance().getProperty(ii));
+		}
+	}
+
+	/**
+	 * Recalculate our value and re-establish our subscriptions
+	 * Called once during construction and again whenever a dependency changes
+	 */
+	void recalculate()
+	{
+		List<IDynamicProperty<Object>> dependencies = new ArrayList<IDynamicProperty<Object>>();
+		T callVal;
+		try{
+			callVal = read(dependencies);
+		} catch (Exception e){
+			callVal = null;
+		}
+
+		//read may have changed our subscriptions so end them
+		closeAllSubscriptions();
+
+		//and register the new ones
+		for(IDynamicProperty<Object> resource : dependencies)
+		{
+			IObserver<Object> obs = DynamicProperty.createObserver(this);
+			Closeable closeSubscription = resource.subscribe(obs);
+			addCloseableCall(closeSubscription);
+		}
+
+		//set our value to the result of read
+		setValueTo(callVal);
+	}
+}
@@ -0,0 +1,242 @@
+package developer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An append-only record of every value change made to the properties attached to it
+ *
+ * Records live outside the java heap, either in a direct buffer or a memory-mapped file,
+ * in a fixed size ring so the oldest records are overwritten once capacity is reached.
+ * Each record is (property id, flags, version, timestamp, encoded value) where the timestamp is in nanoseconds since
+ * the unix epoch, see {@link #now()}, and the value has been squeezed into 64 bits by the property's {@link IJournalCodec}.
+ * Null values are recorded with the NULL flag set and are never passed to the codec.
+ *
+ * Appending is single-writer: it does not allocate or lock, so all attached properties must be updated from one thread.
+ * Readers may replay from any thread; records overwritten while being read are skipped.
+ * Once the ring is full the oldest slot is the one the writer rewrites next, so it is never replayed
+ * and at most capacity - 1 records are available.
+ *
+ * The header holds a magic number, the capacity and the head so a mapped journal can be validated when reopened.
+ */
+public class ChangeJournal
+{
+	private static final int RECORD_SIZE = 32;
+	private static final int HEADER_SIZE = 64;
+
+	private static final long MAGIC = 0x444E594A524E4C31L; //"DNYJRNL1"
+	private static final int MAGIC_OFFSET = 0;
+	private static final int CAPACITY_OFFSET = 8;
+	private static final int HEAD_OFFSET = 16;
+
+	private static final int ID_OFFSET = 0;
+	private static final int FLAGS_OFFSET = 4;
+	private static final int VERSION_OFFSET = 8;
+	private static final int TIMESTAMP_OFFSET = 16;
+	private static final int VALUE_OFFSET = 24;
+
+	private static final int NULL_FLAG = 1;
+
+	/*
+	 * nanoTime has an arbitrary origin per JVM, so anchor it to the wall clock once per process.
+	 * Sharing the anchor keeps every journal in a process on exactly the same timescale;
+	 * journals written by different processes agree to the accuracy of the wall clock.
+	 */
+	private static final long EPOCH_MILLIS = System.currentTimeMillis();
+	private static final long EPOCH_NANO_TIME = System.nanoTime();
+
+	private final ByteBuffer m_Buffer;
+	private final int m_Capacity;
+	private final int m_Mask;
+	private final AtomicLong m_Head;  //sequence number of the next record to be written
+	private final List<IJournalCodec<?>> m_Codecs;
+
+	/**
+	 * @param buffer - either zeroed or holding a journal header already validated against capacity
+	 */
+	private ChangeJournal(ByteBuffer buffer, int capacity)
+	{
+		m_Buffer = buffer.order(ByteOrder.LITTLE_ENDIAN);
+		m_Capacity = capacity;
+		m_Mask = capacity - 1;
+		m_Head = new AtomicLong(m_Buffer.getLong(HEAD_OFFSET));
+		m_Codecs = Collections.synchronizedList(new ArrayList<IJournalCodec<?>>());
+
+		m_Buffer.putLong(MAGIC_OFFSET, MAGIC);
+		m_Buffer.putLong(CAPACITY_OFFSET, capacity);
+	}
+
+	/**
+	 * Creates a journal backed by a direct (off-heap) buffer
+	 *
+	 * @param capacity - the number of slots in the ring, a power of two of at least 2
+	 */
+	public static ChangeJournal allocate(int capacity)
+	{
+		checkCapacity(capacity);
+		return new ChangeJournal(ByteBuffer.allocateDirect(HEADER_SIZE + capacity * RECORD_SIZE), capacity);
+	}
+
+	/**
+	 * Creates a journal backed by a memory-mapped file so records survive the process
+	 * If the file already holds a journal of the same capacity appending resumes where it left off
+	 *
+	 * @param file - the backing file, created if it does not exist or is empty
+	 * @param capacity - the number of slots in the ring, a power of two of at least 2
+	 * @throws IOException if the file holds anything other than a journal of this capacity
+	 */
+	public static ChangeJournal map(File file, int capacity) throws IOException
+	{
+		checkCapacity(capacity);
+		long size = HEADER_SIZE + (long)capacity * RECORD_SIZE;
+		try(RandomAccessFile raf = new RandomAccessFile(file, "rw"); FileChannel channel = raf.getChannel())
+		{
+			long existing = channel.size();
+			if(existing != 0 && existing != size)
+				throw new IOException(file + " is " + existing + " bytes, a journal of capacity " + capacity + " is " + size);
+
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+			buffer.order(ByteOrder.LITTLE_ENDIAN);
+			if(existing != 0)
+			{
+				if(buffer.getLong(MAGIC_OFFSET) != MAGIC)
+					throw new IOException(file + " is not a change journal");
+				if(buffer.getLong(CAPACITY_OFFSET) != capacity)
+					throw new IOException(file + " holds a journal of capacity " + buffer.getLong(CAPACITY_OFFSET) + ", not " + capacity);
+			}
+			return new ChangeJournal(buffer, capacity);
+		}
+	}
+
+	private static void checkCapacity(int capacity)
+	{
+		if(capacity < 2 || Integer.bitCount(capacity) != 1 || capacity > (Integer.MAX_VALUE - HEADER_SIZE) / RECORD_SIZE)
+			throw new IllegalArgumentException("capacity must be a power of two of at least 2: " + capacity);
+	}
+
+	/**
+	 * @return the current time in the journal's timescale, nanoseconds since the unix epoch
+	 * Use this to bound replay ranges; it has nanoTime's resolution but, unlike nanoTime, survives a restart
+	 */
+	public long now()
+	{
+		return EPOCH_MILLIS * 1000000L + (System.nanoTime() - EPOCH_NANO_TIME);
+	}
+
+	/**
+	 * Starts journaling every change made to property
+	 * Ids are handed out in attach order; a mapped journal reopened later must be re-attached in the same order to replay it
+	 *
+	 * @param property - a property created by {@link DynamicProperty}
+	 * @param codec - converts the property's values to and from their 64 bit journal form
+	 * @return the id the property's changes are recorded under
+	 */
+	public <T> int attach(IDynamicProperty<T> property, IJournalCodec<T> codec)
+	{
+		if(!(property instanceof ConcreteDynamicProperty))
+			throw new IllegalArgumentException("only properties created by DynamicProperty can be journaled");
+
+		int id;
+		synchronized(m_Codecs)
+		{
+			id = m_Codecs.size();
+			m_Codecs.add(codec);
+		}
+		((ConcreteDynamicProperty<T>)property).setJournal(this, id, codec);
+		return id;
+	}
+
+	/**
+	 * Records a single change
+	 * Called by the owning property on the setValue path, so this must stay allocation and lock free
+	 *
+	 * @param bNull - true if the value set was null, in which case value is ignored
+	 */
+	void append(int id, long version, boolean bNull, long value)
+	{
+		long head = m_Head.get();
+		int offset = HEADER_SIZE + (int)(head & m_Mask) * RECORD_SIZE;
+
+		//the previous append published head; make sure readers see that before any of the stores overwriting this slot
+		VarHandle.releaseFence();
+		m_Buffer.putInt(offset + ID_OFFSET, id);
+		m_Buffer.putInt(offset + FLAGS_OFFSET, bNull ? NULL_FLAG : 0);
+		m_Buffer.putLong(offset + VERSION_OFFSET, version);
+		m_Buffer.putLong(offset + TIMESTAMP_OFFSET, now());
+		m_Buffer.putLong(offset + VALUE_OFFSET, value);
+		m_Buffer.putLong(HEAD_OFFSET, head + 1);
+
+		//publish the record to readers without paying for a full fence
+		m_Head.lazySet(head + 1);
+	}
+
+	/**
+	 * @return the number of records currently available to replay
+	 */
+	public int getSize()
+	{
+		return (int)Math.min(m_Head.get(), m_Capacity - 1);
+	}
+
+	/**
+	 * Replays every retained change whose timestamp falls in [fromNanos, toNanos] into a fresh set of properties
+	 * Times are nanoseconds since the unix epoch, as returned by {@link #now()}
+	 *
+	 * @return the replayed properties keyed by journal id, each holding the last value recorded in the range
+	 */
+	public Map<Integer, IDynamicProperty<?>> replay(long fromNanos, long toNanos)
+	{
+		Map<Integer, IDynamicProperty<?>> properties = new HashMap<Integer, IDynamicProperty<?>>();
+		replay(fromNanos, toNanos, properties);
+		return properties;
+	}
+
+	/**
+	 * Replays every retained change whose timestamp falls in [fromNanos, toNanos] into targets, in the order they were made
+	 * Times are nanoseconds since the unix epoch, as returned by {@link #now()}
+	 * Ids missing from targets are given a fresh property holding their first replayed value
+	 * Records belonging to an id with no attached codec are skipped
+	 *
+	 * @param targets - properties keyed by journal id, each must hold the type its id was attached with
+	 */
+	@SuppressWarnings("unchecked")
+	public void replay(long fromNanos, long toNanos, Map<Integer, IDynamicProperty<?>> targets)
+	{
+		long head = m_Head.get();
+		for(long seq = Math.max(0, head - m_Capacity); seq < head; seq++)
+		{
+			int offset = HEADER_SIZE + (int)(seq & m_Mask) * RECORD_SIZE;
+			int id = m_Buffer.getInt(offset + ID_OFFSET);
+			int flags = m_Buffer.getInt(offset + FLAGS_OFFSET);
+			long timestamp = m_Buffer.getLong(offset + TIMESTAMP_OFFSET);
+			long value = m_Buffer.getLong(offset + VALUE_OFFSET);
+
+			//the writer may have lapped us while we were reading
+			//the fence keeps the reads above from drifting past the re-check,
+			//and the slot is already being rewritten once head reaches seq + capacity
+			VarHandle.acquireFence();
+			if(m_Head.get() - m_Capacity >= seq)
+				continue;
+
+			if(timestamp < fromNanos || timestamp > toNanos)
+				continue;
+			if(id < 0 || id >= m_Codecs.size())
+				continue;
+
+			Object decoded = (flags & NULL_FLAG) != 0 ? null : m_Codecs.get(id).decode(value);
+			IDynamicProperty<Object> target = (IDynamicProperty<Object>)targets.get(id);
+			if(target == null)
+				targets.put(id, DynamicProperty.create(decoded));
+			else
+				target.setValue(decoded);
+		}
+	}
+}
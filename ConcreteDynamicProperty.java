@@ -3,6 +3,7 @@ package developer;
 import java.io.Closeable;
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
 * Represents a property that can be observed or updated.
@@ -10,19 +11,23 @@ import java.util.*;
 public class ConcreteDynamicProperty<T> implements IDynamicProperty<T>
 {
 	private T m_Value;    
-	private List<IObserver<T>> m_Subscriptions; 
+	private List<Subscription<T>> m_Subscriptions; 
 	private List<Closeable> m_CloseSubscriptionsCalls; 
+	private long m_Version;
+	private ChangeJournal m_Journal;
+	private int m_JournalId;
+	private IJournalCodec<T> m_JournalCodec;
 
 	public ConcreteDynamicProperty(T initialValue)
 	{
 		m_Value = initialValue;
-		m_Subscriptions = Collections.synchronizedList(new ArrayList<IObserver<T>>());
+		m_Subscriptions = new CopyOnWriteArrayList<Subscription<T>>();
 		m_CloseSubscriptionsCalls = Collections.synchronizedList(new ArrayList<Closeable>());
 	}
 
 	public ConcreteDynamicProperty()
     {
-		m_Subscriptions = Collections.synchronizedList(new ArrayList<IObserver<T>>());
+		m_Subscriptions = new CopyOnWriteArrayList<Subscription<T>>();
 		m_CloseSubscriptionsCalls = Collections.synchronizedList(new ArrayList<Closeable>());
 	}
 
@@ -49,6 +54,7 @@ public class ConcreteDynamicProperty<T> implements IDynamicProperty<T>
 	{
 		//set the value
    		m_Value = value;
+   		recordChange();
 
 		//inform all interested parties that a change has occurred
         observeAll();
@@ -66,6 +72,7 @@ public class ConcreteDynamicProperty<T> implements IDynamicProperty<T>
 	{
 		//set the value
    		m_Value = value;
+   		recordChange();
 
 		//inform all interested parties that a change has occurred
         observeAll();
@@ -81,33 +88,91 @@ public class ConcreteDynamicProperty<T> implements IDynamicProperty<T>
     */
     public Closeable subscribe(IObserver<T> callback)
 	{
+		Subscription<T> subscription = null;
 		synchronized(m_Subscriptions){
-			if(!m_Subscriptions.contains(callback))
-				m_Subscriptions.add(callback);
+			for(Subscription<T> existing : m_Subscriptions) {
+				if(existing.m_Observer.equals(callback))
+					subscription = existing;
+			}
+			if(subscription == null) {
+				subscription = new Subscription<T>(callback);
+				m_Subscriptions.add(subscription);
+			}
 		}	
 
+		final Subscription<T> closeMe = subscription;
 		return new Closeable(){
 			@Override
 			public void close() throws IOException
 			{
 				synchronized(m_Subscriptions){
-					if(m_Subscriptions.contains(callback))
-						m_Subscriptions.remove(callback);
+					closeMe.m_bClosed = true;
+					m_Subscriptions.remove(closeMe);
 				}
 			}
 		};
 	}
 
+	/**
+	 * An observer and whether its subscription has been closed
+	 * observeAll checks the flag so observers closed part way through a notification pass aren't called
+	 */
+	private static class Subscription<T>
+	{
+		final IObserver<T> m_Observer;
+		volatile boolean m_bClosed;
+
+		Subscription(IObserver<T> observer)
+		{
+			m_Observer = observer;
+		}
+	}
+
+	/**
+	 * Bump the version and append the change to the journal, if one is attached
+	 */
+	private void recordChange()
+	{
+		m_Version++;
+		if(m_Journal != null)
+			m_Journal.append(m_JournalId, m_Version, m_Value == null, m_Value == null ? 0L : m_JournalCodec.encode(m_Value));
+	}
+
+	/**
+	 * @return the number of times the value has been set
+	 */
+	public long getVersion()
+	{
+		return m_Version;
+	}
+
+	/**
+	 * Called by {@link ChangeJournal#attach} to start journaling changes to this property
+	 */
+	void setJournal(ChangeJournal journal, int id, IJournalCodec<T> codec)
+	{
+		m_JournalCodec = codec;
+		m_JournalId = id;
+		m_Journal = journal;
+	}
+
 	/**
 	 * inform all interested parties of a change in state
+	 * 
+	 * subscriptions are copy-on-write because a calculated observer recalculating will close and re-open
+	 * its subscriptions, possibly to us, while we're still iterating; this keeps the set path free of copies
+	 * observers closed earlier in the same pass are skipped, they've been replaced by ones already up to date
 	*/
 	protected void observeAll()
 	{
-    	synchronized(m_Subscriptions){
-    		for(IObserver<T> obs : m_Subscriptions) {
-    			obs.observe(m_Value);
-    		}
-        }
+		if(m_Subscriptions.isEmpty())
+			return;
+
+		T value = m_Value;
+		for(Subscription<T> subscription : m_Subscriptions) {
+			if(!subscription.m_bClosed)
+				subscription.m_Observer.observe(value);
+		}
 	}
 	
 	/**
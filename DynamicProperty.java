@@ -1,7 +1,6 @@
 package developer;
 
 import java.util.concurrent.Callable;
-import java.io.Closeable;
 
 /**
  * Static factory methods to create <see cref="IDynamicProperty{T}"/> instances.
@@ -42,65 +41,52 @@ public class DynamicProperty
    */
   public static <T> IDynamicProperty<T> create(Callable<T> read, IObserver<T> write) 	
   {
-    ConcreteDynamicProperty<T> prop = new ConcreteDynamicProperty<T>() {
-      @Override
-        public void setValue(T value)
-        {
-          //execute observe once to do whatever was requested at the base level
-          write.observe(value);
-
-          //propagate the change if appropriate via subscriptions
-          observeAll();
-        }
-    };
+    CalculatedDynamicProperty<T> prop = new CalculatedDynamicProperty<T>(read, write);
 
-    // initialize our new DP, prop using read.call via it's own observe(T val) call
+    // initialize our new DP, prop using read.call
     // this will set prop's value and create its own subscriptions
     // it will also mean future calls to remove and re-establish subscriptions to accommodate any chained dependencies
-    IObserver<Integer> obs = createObserver(read, prop);
-    obs.observe(0);
+    prop.recalculate();
     return prop;
   }
 
 
+  /**
+   * Creates a calculated {@link IDynamicProperty} that remembers its most
+   * recent results. When a dependency changes and every dependency captured
+   * by an earlier read again holds the value it held then, that earlier
+   * result is reused instead of calling read.
+   *
+   * @param read
+   *            As for {@link #create(Callable, IObserver)}, but must be a
+   *            pure function of the dynamic properties it accesses
+   * @param write
+   *            As for {@link #create(Callable, IObserver)}
+   * @param maxEntries
+   *            The number of results to remember before the least recently
+   *            used is evicted
+   * @return
+   */
+  public static <T> MemoizedDynamicProperty<T> createMemoized(Callable<T> read, IObserver<T> write, int maxEntries)
+  {
+    MemoizedDynamicProperty<T> prop = new MemoizedDynamicProperty<T>(read, write, maxEntries);
+    prop.recalculate();
+    return prop;
+  }
+
   /*
-   * Due to type erasure we can't use reflection to glean type at runtime.
-   * We've chosen to store DPs in a Object collection in order to decouple the Factory and product (DP).
-   * Consequently, we have to explicitly cast them when we pull them out of the collection.
-   * Unfortunately, this means that we have to implement a conditional statement clause for each type we intend to use.
+   * Observers subscribed to a calculated property's dependencies, each change triggers a recalculation.
    *
    * I've chosen to place this method here, with DP instantiation so that like concepts are at least 
    * conceptually grouped to ease future extension.
    */	
-  public static <T,U> IObserver<U> createObserver(Callable<T> read, ConcreteDynamicProperty<T> prop)
+  public static <T,U> IObserver<U> createObserver(CalculatedDynamicProperty<T> prop)
   {
     return new IObserver<U>() {
       @Override
         public void observe(U value)
         {
-          DependencyListener.getInstance().startListening();
-          T callVal;
-          try{
-            callVal = read.call();
-          } catch (Exception e){
-            callVal = null;
-          }
-          DependencyListener.getInstance().stopListening();
-
-          //read.call may have changed our subscriptions so end them
-          prop.closeAllSubscriptions();
-
-          //and register the new ones
-          for(int ii=0;ii < DependencyListener.getInstance().getSize();ii++)
-          {
-            IDynamicProperty<T> resource = (IDynamicProperty<T>)DependencyListener.getInstance().getProperty(ii);
-            IObserver<T> obs = createObserver(read, prop);
-            Closeable closeSubscription = resource.subscribe(obs);
-            prop.addCloseableCall(closeSubscription);
-          }
-
-          //set new instance's value to read.call
-          prop.setValueTo(callVal);
+          prop.recalculate();
         }
     };
   }
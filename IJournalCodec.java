@@ -0,0 +1,35 @@
+package developer;
+
+/**
+ * Encodes property values into the fixed 64 bit slot of a {@link ChangeJournal} record and back again.
+ *
+ * encode is called on the setValue path and should not allocate
+ * decode is only called while replaying, so it may box freely
+ * null is recorded by the journal itself, so neither method is ever passed or expected to return null
+**/
+public interface IJournalCodec<T>
+{
+	long encode(T value);
+
+	T decode(long bits);
+
+	public static final IJournalCodec<Integer> INTEGER = new IJournalCodec<Integer>() {
+		@Override public long encode(Integer value) { return value.longValue(); }
+		@Override public Integer decode(long bits) { return Integer.valueOf((int)bits); }
+	};
+
+	public static final IJournalCodec<Long> LONG = new IJournalCodec<Long>() {
+		@Override public long encode(Long value) { return value.longValue(); }
+		@Override public Long decode(long bits) { return Long.valueOf(bits); }
+	};
+
+	public static final IJournalCodec<Double> DOUBLE = new IJournalCodec<Double>() {
+		@Override public long encode(Double value) { return Double.doubleToRawLongBits(value.doubleValue()); }
+		@Override public Double decode(long bits) { return Double.valueOf(Double.longBitsToDouble(bits)); }
+	};
+
+	public static final IJournalCodec<Boolean> BOOLEAN = new IJournalCodec<Boolean>() {
+		@Override public long encode(Boolean value) { return value.booleanValue() ? 1L : 0L; }
+		@Override public Boolean decode(long bits) { return Boolean.valueOf(bits != 0L); }
+	};
+}
@@ -0,0 +1,185 @@
+package developer;
+
+import java.util.*;
+import java.util.concurrent.Callable;
+
+/**
+ * A calculated property that remembers its most recent results
+ *
+ * Each result is stored alongside the dependencies its read captured and the values they held at the time.
+ * Before read is called again we look for a remembered result whose dependencies all still hold those values;
+ * if one exists read would take the same path and produce the same result, so we serve it instead.
+ * This is only sound when read is a pure function of the dynamic properties it accesses
+ * and those properties hold immutable values with a meaningful equals.
+ *
+ * Results are evicted least-recently-used once maxEntries is reached.
+ */
+public class MemoizedDynamicProperty<T> extends CalculatedDynamicProperty<T>
+{
+	private final LinkedList<Snapshot<T>> m_Cache;  //most recently used first
+	private final int m_MaxEntries;
+	private long m_Hits;
+	private long m_Misses;
+
+	public MemoizedDynamicProperty(Callable<T> read, IObserver<T> write, int maxEntries)
+	{
+		super(read, write);
+		if(maxEntries <= 0)
+			throw new IllegalArgumentException("maxEntries must be positive: " + maxEntries);
+
+		m_Cache = new LinkedList<Snapshot<T>>();
+		m_MaxEntries = maxEntries;
+	}
+
+	/**
+	 * Serve a remembered result if one is still current, otherwise read and remember the result
+	 * Failed reads aren't remembered, they may be transient
+	 */
+	@Override
+	protected T read(List<IDynamicProperty<Object>> dependencies) throws Exception
+	{
+		Snapshot<T> remembered = recall();
+		if(remembered != null)
+		{
+			dependencies.addAll(remembered.getDependencies());
+			return remembered.getResult();
+		}
+
+		T result = super.read(dependencies);
+		remember(new ArrayList<IDynamicProperty<Object>>(dependencies), result);
+		return result;
+	}
+
+	/**
+	 * Look for a remembered result whose dependencies still hold the values they held when it was calculated
+	 * Counts a hit or a miss accordingly
+	 *
+	 * @return the matching snapshot, or null if read must be called
+	 */
+	private Snapshot<T> recall()
+	{
+		//checking a snapshot reads its dependencies, which reaches the DependencyListener, so do it outside our lock
+		List<Snapshot<T>> snapshots;
+		synchronized(m_Cache)
+		{
+			snapshots = new ArrayList<Snapshot<T>>(m_Cache);
+		}
+
+		for(Snapshot<T> snapshot : snapshots)
+		{
+			if(snapshot.isCurrent())
+			{
+				synchronized(m_Cache)
+				{
+					m_Hits++;
+					//move it to the front so it becomes most recently used, unless it was evicted meanwhile
+					if(m_Cache.remove(snapshot))
+						m_Cache.addFirst(snapshot);
+				}
+				return snapshot;
+			}
+		}
+
+		synchronized(m_Cache)
+		{
+			m_Misses++;
+		}
+		return null;
+	}
+
+	/**
+	 * Remember the result of a read along with the dependencies it captured and their current values
+	 */
+	private void remember(List<IDynamicProperty<Object>> dependencies, T result)
+	{
+		Snapshot<T> snapshot = new Snapshot<T>(dependencies, result);
+		synchronized(m_Cache)
+		{
+			m_Cache.addFirst(snapshot);
+			while(m_Cache.size() > m_MaxEntries)
+				m_Cache.removeLast();
+		}
+	}
+
+	/**
+	 * @return the number of recalculations served from the cache
+	 */
+	public long getHitCount()
+	{
+		synchronized(m_Cache)
+		{
+			return m_Hits;
+		}
+	}
+
+	/**
+	 * @return the number of recalculations, including the initial one, that had to call read
+	 */
+	public long getMissCount()
+	{
+		synchronized(m_Cache)
+		{
+			return m_Misses;
+		}
+	}
+
+	/**
+	 * @return the number of results currently remembered
+	 */
+	public int getCacheSize()
+	{
+		synchronized(m_Cache)
+		{
+			return m_Cache.size();
+		}
+	}
+
+	/**
+	 * The dependencies captured by a single read, the values they held and the result read produced
+	 * Values are compared by equals
+	 */
+	private static class Snapshot<T>
+	{
+		private final List<IDynamicProperty<Object>> m_Dependencies;
+		private final Object[] m_Values;
+		private final T m_Result;
+
+		Snapshot(List<IDynamicProperty<Object>> dependencies, T result)
+		{
+			m_Dependencies = dependencies;
+			m_Values = new Object[dependencies.size()];
+			m_Result = result;
+
+			for(int ii = 0; ii < m_Values.length; ii++)
+				m_Values[ii] = dependencies.get(ii).getValue();
+		}
+
+		List<IDynamicProperty<Object>> getDependencies()
+		{
+			return m_Dependencies;
+		}
+
+		T getResult()
+		{
+			return m_Result;
+		}
+
+		/**
+		 * A dependency that can't be read, e.g. one now holding null, means we can't vouch for the result
+		 * so the snapshot is treated as stale and read is called to recalculate and re-capture dependencies
+		 */
+		boolean isCurrent()
+		{
+			try{
+				for(int ii = 0; ii < m_Values.length; ii++)
+				{
+					if(!Objects.equals(m_Values[ii], m_Dependencies.get(ii).getValue()))
+						return false;
+				}
+				return true;
+			} catch (RuntimeException e){
+				return false;
+			}
+		}
+	}
+}
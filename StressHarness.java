@@ -0,0 +1,528 @@
+package developer;
+
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Generates random property graphs and hammers them from many writer and reader threads
+ *
+ * Every calculated property in the graph is a pure function of the properties it reads,
+ * so once the writers have stopped its value must match a sequential oracle evaluated
+ * over the final input values. Any difference is a lost or stale update.
+ * Write latency includes propagation through the graph, read latency is a single getValue.
+ *
+ * Run main to soak every shape, or drive a single shape from a test via run.
+ */
+public class StressHarness
+{
+	public enum Shape
+	{
+		/** each calculated property depends on the one before it */
+		CHAIN,
+		/** short stacks of a -> (b, c) -> d hanging off a few inputs */
+		DIAMOND,
+		/** a few inputs each read by many calculated properties */
+		FAN_OUT,
+		/** calculated properties that use a selector input to choose which other input they read */
+		SWITCH
+	}
+
+	private static final int INPUT_RANGE = 1000;
+	private static final int SAMPLES_PER_THREAD = 1 << 16;
+	private static final int MAX_DIAMOND_DEPTH = 4;
+	private static final long STOP_MILLIS = 1000;
+
+	/**
+	 * A node of the graph. Inputs have no arguments; calculated nodes sum their arguments plus their index,
+	 * or when switching, read args[1 + selector % (args.length - 1)] where the selector is args[0]
+	 */
+	private static class Node
+	{
+		final int m_Index;
+		final int[] m_Args;
+		final boolean m_bSwitch;
+		IDynamicProperty<Integer> m_Property;
+
+		Node(int index, int[] args, boolean bSwitch)
+		{
+			m_Index = index;
+			m_Args = args;
+			m_bSwitch = bSwitch;
+		}
+
+		boolean isInput()
+		{
+			return m_Args.length == 0;
+		}
+	}
+
+	private final Shape m_Shape;
+	private final long m_Seed;
+	private final List<Node> m_Nodes;
+	private final List<Node> m_Inputs;
+	private final List<Node> m_Calculated;
+
+	/**
+	 * @param shape - the kind of graph to generate
+	 * @param size - roughly the number of calculated properties to generate
+	 * @param seed - seeds both graph generation and the values written, so runs can be repeated
+	 */
+	public StressHarness(Shape shape, int size, long seed)
+	{
+		m_Shape = shape;
+		m_Seed = seed;
+		m_Nodes = new ArrayList<Node>();
+		m_Inputs = new ArrayList<Node>();
+		m_Calculated = new ArrayList<Node>();
+
+		Random random = new Random(seed);
+		generate(shape, Math.max(1, size), random);
+		for(Node node : m_Nodes)
+		{
+			if(node.isInput())
+				m_Inputs.add(node);
+			else
+				m_Calculated.add(node);
+		}
+		build(random);
+	}
+
+	private void generate(Shape shape, int size, Random random)
+	{
+		switch(shape)
+		{
+			case CHAIN:
+				addNode(new int[0], false);
+				for(int ii = 0; ii < size; ii++)
+					addNode(new int[] { m_Nodes.size() - 1 }, false);
+				break;
+
+			case DIAMOND:
+				//each diamond doubles the recalculations below it, so keep the stacks short and grow sideways
+				int roots = Math.max(1, size / (3 * MAX_DIAMOND_DEPTH));
+				for(int ii = 0; ii < roots; ii++)
+					addNode(new int[0], false);
+				for(int ii = 0; ii < Math.max(1, size / 3); ii++)
+				{
+					int top = ii % MAX_DIAMOND_DEPTH == 0 ? random.nextInt(roots) : m_Nodes.size() - 1;
+					int left = addNode(new int[] { top }, false);
+					int right = addNode(new int[] { top }, false);
+					addNode(new int[] { left, right }, false);
+				}
+				break;
+
+			case FAN_OUT:
+				int inputs = Math.max(2, size / 16);
+				for(int ii = 0; ii < inputs; ii++)
+					addNode(new int[0], false);
+				for(int ii = 0; ii < size; ii++)
+				{
+					int[] args = new int[1 + random.nextInt(3)];
+					for(int jj = 0; jj < args.length; jj++)
+						args[jj] = random.nextInt(inputs);
+					addNode(args, false);
+				}
+				break;
+
+			case SWITCH:
+				int selector = addNode(new int[0], false);
+				int choices = Math.max(2, size / 8);
+				int first = m_Nodes.size();
+				for(int ii = 0; ii < choices; ii++)
+					addNode(new int[0], false);
+				for(int ii = 0; ii < size; ii++)
+				{
+					int[] args = new int[3 + random.nextInt(2)];
+					args[0] = selector;
+					for(int jj = 1; jj < args.length; jj++)
+						args[jj] = first + random.nextInt(choices);
+					addNode(args, true);
+				}
+				break;
+		}
+	}
+
+	private int addNode(int[] args, boolean bSwitch)
+	{
+		m_Nodes.add(new Node(m_Nodes.size(), args, bSwitch));
+		return m_Nodes.size() - 1;
+	}
+
+	/**
+	 * create the dynamic properties, in index order so every argument exists before it is read
+	 */
+	private void build(Random random)
+	{
+		for(final Node node : m_Nodes)
+		{
+			if(node.isInput())
+			{
+				node.m_Property = DynamicProperty.create(random.nextInt(INPUT_RANGE));
+				continue;
+			}
+
+			node.m_Property = DynamicProperty.create(
+				new Callable<Integer>() {
+					@Override public Integer call() throws Exception {
+						if(node.m_bSwitch)
+						{
+							int selected = m_Nodes.get(node.m_Args[0]).m_Property.getValue();
+							return m_Nodes.get(node.m_Args[1 + selected % (node.m_Args.length - 1)]).m_Property.getValue();
+						}
+						int sum = node.m_Index;
+						for(int arg : node.m_Args)
+							sum += m_Nodes.get(arg).m_Property.getValue();
+						return sum;
+					}
+				},
+				new IObserver<Integer>() { @Override public void observe(Integer value) { /* calculated nodes are read-only */ } });
+		}
+	}
+
+	/**
+	 * Evaluate the graph sequentially from the inputs' current values
+	 *
+	 * @return the value every node should hold, by index
+	 */
+	private int[] oracle()
+	{
+		int[] values = new int[m_Nodes.size()];
+		for(Node node : m_Nodes)
+		{
+			if(node.isInput())
+			{
+				values[node.m_Index] = node.m_Property.getValue();
+			}
+			else if(node.m_bSwitch)
+			{
+				values[node.m_Index] = values[node.m_Args[1 + values[node.m_Args[0]] % (node.m_Args.length - 1)]];
+			}
+			else
+			{
+				int sum = node.m_Index;
+				for(int arg : node.m_Args)
+					sum += values[arg];
+				values[node.m_Index] = sum;
+			}
+		}
+		return values;
+	}
+
+	/**
+	 * @return the number of calculated properties whose value differs from the oracle
+	 */
+	public int countMismatches()
+	{
+		int[] expected = oracle();
+		int mismatches = 0;
+		for(Node node : m_Calculated)
+		{
+			Integer actual;
+			try{
+				actual = node.m_Property.getValue();
+			} catch (RuntimeException e){
+				actual = null;
+			}
+			if(actual == null || actual.intValue() != expected[node.m_Index])
+				mismatches++;
+		}
+		return mismatches;
+	}
+
+	public int getInputCount()
+	{
+		return m_Inputs.size();
+	}
+
+	public int getCalculatedCount()
+	{
+		return m_Calculated.size();
+	}
+
+	/**
+	 * Hammer the graph then check it against the oracle
+	 * Readers keep reading for as long as any writer is still writing, so they contend with every write
+	 *
+	 * @param writers - threads setting random inputs to random values
+	 * @param readers - threads reading random calculated properties
+	 * @param opsPerWriter - the number of writes each writer performs
+	 * @param timeoutMillis - how long to wait for the writers before reporting the run as hung
+	 */
+	public Report run(int writers, int readers, final int opsPerWriter, long timeoutMillis) throws InterruptedException
+	{
+		final CountDownLatch start = new CountDownLatch(1);
+		final CountDownLatch writersDone = new CountDownLatch(writers);
+		final AtomicBoolean stopReading = new AtomicBoolean(false);
+		final AtomicInteger errors = new AtomicInteger();
+		final AtomicReference<Throwable> firstError = new AtomicReference<Throwable>();
+		final long[][] samples = new long[writers + readers][];
+		final long[] opsDone = new long[writers + readers];
+		final long[] elapsed = new long[writers + readers];
+		List<Thread> threads = new ArrayList<Thread>();
+
+		for(int ii = 0; ii < writers + readers; ii++)
+		{
+			final int index = ii;
+			final boolean bWriter = ii < writers;
+			samples[ii] = new long[bWriter ? Math.min(opsPerWriter, SAMPLES_PER_THREAD) : SAMPLES_PER_THREAD];
+
+			final Random random = new Random(m_Seed * 31 + ii);
+			Thread thread = new Thread(new Runnable() {
+				@Override public void run() {
+					try{
+						start.await();
+					} catch (InterruptedException e){
+						return;
+					}
+					long[] threadSamples = samples[index];
+					long threadBegan = System.nanoTime();
+					long op = 0;
+					while(bWriter ? op < opsPerWriter : !stopReading.get())
+					{
+						long began = System.nanoTime();
+						try{
+							if(bWriter)
+								m_Inputs.get(random.nextInt(m_Inputs.size())).m_Property.setValue(random.nextInt(INPUT_RANGE));
+							else
+								m_Calculated.get(random.nextInt(m_Calculated.size())).m_Property.getValue();
+						} catch (Throwable t){
+							errors.incrementAndGet();
+							firstError.compareAndSet(null, t);
+						}
+						//keep the most recent samples once the buffer is full
+						threadSamples[(int)(op % threadSamples.length)] = System.nanoTime() - began;
+						op++;
+					}
+					opsDone[index] = op;
+					elapsed[index] = System.nanoTime() - threadBegan;
+					if(bWriter)
+						writersDone.countDown();
+				}
+			}, "stress-" + (bWriter ? "writer-" : "reader-") + ii);
+			thread.setDaemon(true);
+			threads.add(thread);
+			thread.start();
+		}
+
+		long began = System.nanoTime();
+		start.countDown();
+		boolean bWritersFinished = writersDone.await(timeoutMillis, TimeUnit.MILLISECONDS);
+
+		//readers stop once the writers have, or have hung; give every thread a moment to wind down
+		stopReading.set(true);
+		for(Thread thread : threads)
+			thread.join(STOP_MILLIS);
+
+		int hung = 0;
+		for(Thread thread : threads)
+		{
+			if(thread.isAlive())
+				hung++;
+		}
+
+		//a hung graph may be holding locks, so don't risk checking it against the oracle
+		if(!bWritersFinished || hung > 0)
+			return new Report(m_Shape, writers, readers, 0, 0, System.nanoTime() - began, System.nanoTime() - began, new long[0], new long[0],
+					errors.get(), firstError.get(), Math.max(1, hung), -1);
+
+		//each group is timed by its slowest thread, so throughput is ops over the time that group was actually running
+		long writes = 0;
+		long reads = 0;
+		long writeElapsed = 0;
+		long readElapsed = 0;
+		for(int ii = 0; ii < opsDone.length; ii++)
+		{
+			if(ii < writers)
+			{
+				writes += opsDone[ii];
+				writeElapsed = Math.max(writeElapsed, elapsed[ii]);
+			}
+			else
+			{
+				reads += opsDone[ii];
+				readElapsed = Math.max(readElapsed, elapsed[ii]);
+			}
+		}
+
+		return new Report(m_Shape, writers, readers, writes, reads, writeElapsed, readElapsed,
+				merge(samples, opsDone, 0, writers), merge(samples, opsDone, writers, writers + readers),
+				errors.get(), firstError.get(), 0, countMismatches());
+	}
+
+	/**
+	 * Merge and sort the samples recorded by threads [from, to), ignoring the unused end of any buffer that never filled
+	 */
+	private static long[] merge(long[][] samples, long[] opsDone, int from, int to)
+	{
+		int total = 0;
+		for(int ii = from; ii < to; ii++)
+			total += (int)Math.min(opsDone[ii], samples[ii].length);
+
+		long[] merged = new long[total];
+		int offset = 0;
+		for(int ii = from; ii < to; ii++)
+		{
+			int count = (int)Math.min(opsDone[ii], samples[ii].length);
+			System.arraycopy(samples[ii], 0, merged, offset, count);
+			offset += count;
+		}
+		Arrays.sort(merged);
+		return merged;
+	}
+
+	/**
+	 * The outcome of a single run
+	 */
+	public static class Report
+	{
+		private final Shape m_Shape;
+		private final int m_Writers;
+		private final int m_Readers;
+		private final long m_Writes;
+		private final long m_Reads;
+		private final long m_WriteElapsedNanos;
+		private final long m_ReadElapsedNanos;
+		private final long[] m_WriteLatencies;
+		private final long[] m_ReadLatencies;
+		private final int m_Errors;
+		private final Throwable m_FirstError;
+		private final int m_Hung;
+		private final int m_Mismatches;
+
+		Report(Shape shape, int writers, int readers, long writes, long reads, long writeElapsedNanos, long readElapsedNanos,
+				long[] writeLatencies, long[] readLatencies, int errors, Throwable firstError, int hung, int mismatches)
+		{
+			m_Shape = shape;
+			m_Writers = writers;
+			m_Readers = readers;
+			m_Writes = writes;
+			m_Reads = reads;
+			m_WriteElapsedNanos = writeElapsedNanos;
+			m_ReadElapsedNanos = readElapsedNanos;
+			m_WriteLatencies = writeLatencies;
+			m_ReadLatencies = readLatencies;
+			m_Errors = errors;
+			m_FirstError = firstError;
+			m_Hung = hung;
+			m_Mismatches = mismatches;
+		}
+
+		/**
+		 * @return true if every thread finished, no operation threw and every calculated property matched the oracle
+		 */
+		public boolean isConsistent()
+		{
+			return m_Hung == 0 && m_Errors == 0 && m_Mismatches == 0;
+		}
+
+		/**
+		 * @return the number of threads still running when the timeout expired, usually a deadlock
+		 */
+		public int getHung()
+		{
+			return m_Hung;
+		}
+
+		public int getErrors()
+		{
+			return m_Errors;
+		}
+
+		public Throwable getFirstError()
+		{
+			return m_FirstError;
+		}
+
+		/**
+		 * @return the number of calculated properties that differ from the oracle, or -1 if the run hung
+		 */
+		public int getMismatches()
+		{
+			return m_Mismatches;
+		}
+
+		/**
+		 * @return writes completed per second of the writers' running time
+		 */
+		public double getWritesPerSecond()
+		{
+			return m_Writes * 1e9 / Math.max(1, m_WriteElapsedNanos);
+		}
+
+		/**
+		 * @return reads completed per second of the readers' running time, which spans the writers'
+		 */
+		public double getReadsPerSecond()
+		{
+			return m_Reads * 1e9 / Math.max(1, m_ReadElapsedNanos);
+		}
+
+		/**
+		 * @param percentile - between 0 and 100
+		 * @return the write latency in nanoseconds at that percentile, or 0 if there were no writes
+		 */
+		public long getWriteLatency(double percentile)
+		{
+			return percentile(m_WriteLatencies, percentile);
+		}
+
+		/**
+		 * @param percentile - between 0 and 100
+		 * @return the read latency in nanoseconds at that percentile, or 0 if there were no reads
+		 */
+		public long getReadLatency(double percentile)
+		{
+			return percentile(m_ReadLatencies, percentile);
+		}
+
+		private static long percentile(long[] sorted, double percentile)
+		{
+			if(sorted.length == 0)
+				return 0;
+			int index = (int)Math.ceil(percentile / 100.0 * sorted.length) - 1;
+			return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+		}
+
+		@Override
+		public String toString()
+		{
+			return String.format("%-8s writers=%d readers=%d %s hung=%d errors=%d mismatches=%d%n"
+					+ "  writes %,.0f/s p50=%dns p90=%dns p99=%dns p99.9=%dns max=%dns%n"
+					+ "  reads  %,.0f/s p50=%dns p90=%dns p99=%dns p99.9=%dns max=%dns",
+					m_Shape, m_Writers, m_Readers, isConsistent() ? "OK" : "FAILED", m_Hung, m_Errors, m_Mismatches,
+					getWritesPerSecond(), getWriteLatency(50), getWriteLatency(90), getWriteLatency(99), getWriteLatency(99.9), getWriteLatency(100),
+					getReadsPerSecond(), getReadLatency(50), getReadLatency(90), getReadLatency(99), getReadLatency(99.9), getReadLatency(100));
+		}
+	}
+
+	/**
+	 * Soak every shape
+	 * usage: StressHarness [writers [readers [opsPerWriter [size [seed [timeoutSeconds]]]]]]
+	 */
+	public static void main(String[] args) throws InterruptedException
+	{
+		int writers = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+		int readers = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+		int opsPerWriter = args.length > 2 ? Integer.parseInt(args[2]) : 100000;
+		int size = args.length > 3 ? Integer.parseInt(args[3]) : 64;
+		long seed = args.length > 4 ? Long.parseLong(args[4]) : System.nanoTime();
+		long timeoutMillis = (args.length > 5 ? Long.parseLong(args[5]) : 60) * 1000;
+
+		System.out.println("seed=" + seed);
+		boolean bConsistent = true;
+		for(Shape shape : Shape.values())
+		{
+			Report report = new StressHarness(shape, size, seed).run(writers, readers, opsPerWriter, timeoutMillis);
+			System.out.println(report);
+			if(report.getFirstError() != null)
+				System.out.println("  first error: " + report.getFirstError());
+			bConsistent &= report.isConsistent();
+		}
+		System.exit(bConsistent ? 0 : 1);
+	}
+}
@@ -143,6 +143,31 @@ public class TestSet1Basic_CalculatedProperties {
 	        Assert.assertTrue(a.getValue() == 99);
 	    }
 
+		@Test
+	    public void dependentsSharingAnInputAreEachReevaluatedOnce() {
+	    	final Integer[] evalCount = new Integer[] { 0 };
+			final IDynamicProperty<Integer> a = DynamicProperty.create(1);
+			final IDynamicProperty<Integer> b = DynamicProperty.create(
+        		new Callable<Integer>() { @Override public Integer call() throws Exception { return a.getValue() * 10; } },
+        		new IObserver<Integer>() { @Override public void observe(Integer value) { /* noop */ } });
+			// c depends on a directly and through b, so recalculating via b replaces c's subscription to a mid-notification
+			IDynamicProperty<Integer> c = DynamicProperty.create(
+        		new Callable<Integer>() { @Override public Integer call() throws Exception { evalCount[0]++; return a.getValue() + b.getValue(); } },
+        		new IObserver<Integer>() { @Override public void observe(Integer value) { /* noop */ } });
+
+	        Assert.assertTrue(c.getValue() == 11);
+	        Assert.assertTrue(evalCount[0] == 1);
+
+	        a.setValue(2);
+	        Assert.assertTrue(b.getValue() == 20);
+	        Assert.assertTrue(c.getValue() == 22);
+	        Assert.assertTrue(evalCount[0] == 2);
+
+	        a.setValue(3);
+	        Assert.assertTrue(c.getValue() == 33);
+	        Assert.assertTrue(evalCount[0] == 3);
+	    }
+
 		@Test
 		/**
 		 * I had to change the following in the capturesNewDependenciesOnSubsequentReads test method to avoid class cast exception (java.lang.ClassCastException: [Ljava.lang.Object; cannot be cast to [Ldeveloper.IDynamicProperty;).
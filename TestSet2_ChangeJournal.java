@@ -0,0 +1,229 @@
+package developer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+
+/// Tests that changes are journaled and can be replayed into fresh properties
+public class TestSet2_ChangeJournal {
+
+		@Test
+	    public void everyChangeIsJournaled() {
+			ChangeJournal journal = ChangeJournal.allocate(16);
+			IDynamicProperty<Integer> p = DynamicProperty.create(42);
+			journal.attach(p, IJournalCodec.INTEGER);
+
+	        Assert.assertTrue(journal.getSize() == 0);
+	        p.setValue(1);
+	        p.setValue(2);
+	        p.setValue(3);
+	        Assert.assertTrue(journal.getSize() == 3);
+	    }
+
+		@Test
+	    public void replayRebuildsLastValues() {
+			ChangeJournal journal = ChangeJournal.allocate(16);
+			IDynamicProperty<Integer> a = DynamicProperty.create(0);
+			IDynamicProperty<Double> b = DynamicProperty.create(0.0);
+			int aId = journal.attach(a, IJournalCodec.INTEGER);
+			int bId = journal.attach(b, IJournalCodec.DOUBLE);
+
+			long start = journal.now();
+	        a.setValue(100);
+	        b.setValue(1.5);
+	        a.setValue(200);
+
+	        Map<Integer, IDynamicProperty<?>> replayed = journal.replay(start, journal.now());
+	        Assert.assertEquals(200, replayed.get(aId).getValue());
+	        Assert.assertEquals(1.5, replayed.get(bId).getValue());
+	        Assert.assertNotSame(a, replayed.get(aId));
+	    }
+
+		@Test
+	    public void replayHonoursTimeRange() {
+			ChangeJournal journal = ChangeJournal.allocate(16);
+			IDynamicProperty<Integer> p = DynamicProperty.create(0);
+			int id = journal.attach(p, IJournalCodec.INTEGER);
+
+	        // wait out the clock's resolution around each bound so no record shares a timestamp with one
+	        p.setValue(1);
+			long from = tickAfter(journal, journal.now());
+	        p.setValue(2);
+			long to = journal.now();
+			tickAfter(journal, to);
+	        p.setValue(3);
+
+	        Map<Integer, IDynamicProperty<?>> replayed = journal.replay(from, to);
+	        Assert.assertEquals(2, replayed.get(id).getValue());
+	    }
+
+		/**
+		 * spin until the journal's clock has moved past time
+		 */
+		private static long tickAfter(ChangeJournal journal, long time) {
+			long now;
+			while((now = journal.now()) <= time)
+				Thread.yield();
+			return now;
+		}
+
+		@Test
+	    public void replayNotifiesSubscribersOfTargetsInOrder() {
+			ChangeJournal journal = ChangeJournal.allocate(16);
+			long start = journal.now();
+			IDynamicProperty<Integer> p = DynamicProperty.create(0);
+			int id = journal.attach(p, IJournalCodec.INTEGER);
+	        p.setValue(1);
+	        p.setValue(2);
+	        p.setValue(3);
+
+	        final StringBuilder seen = new StringBuilder();
+	        IDynamicProperty<Integer> target = DynamicProperty.create(0);
+	        target.subscribe(new IObserver<Integer>() { @Override public void observe(Integer value) { seen.append(value); } });
+	        Map<Integer, IDynamicProperty<?>> targets = new HashMap<Integer, IDynamicProperty<?>>();
+	        targets.put(id, target);
+
+	        journal.replay(start, journal.now(), targets);
+	        Assert.assertEquals("123", seen.toString());
+	    }
+
+		@Test
+	    public void oldestRecordsAreOverwritten() {
+			ChangeJournal journal = ChangeJournal.allocate(4);
+			long start = journal.now();
+			IDynamicProperty<Integer> p = DynamicProperty.create(0);
+			int id = journal.attach(p, IJournalCodec.INTEGER);
+	        for(int i = 1; i <= 10; i++)
+	        	p.setValue(i);
+
+	        final StringBuilder seen = new StringBuilder();
+	        IDynamicProperty<Integer> target = DynamicProperty.create(0);
+	        target.subscribe(new IObserver<Integer>() { @Override public void observe(Integer value) { seen.append(value).append(','); } });
+	        Map<Integer, IDynamicProperty<?>> targets = new HashMap<Integer, IDynamicProperty<?>>();
+	        targets.put(id, target);
+
+	        journal.replay(start, journal.now(), targets);
+	        // the slot due to be overwritten next is never replayed
+	        Assert.assertTrue(journal.getSize() == 3);
+	        Assert.assertEquals("8,9,10,", seen.toString());
+	    }
+
+		@Test
+	    public void calculatedPropertiesJournalRecalculatedValues() {
+			ChangeJournal journal = ChangeJournal.allocate(16);
+			long start = journal.now();
+			final IDynamicProperty<Integer> v = DynamicProperty.create(42);
+	        IDynamicProperty<Integer> p = DynamicProperty.create(
+        		new java.util.concurrent.Callable<Integer>() { @Override public Integer call() throws Exception { return 10 * v.getValue(); } },
+        		new IObserver<Integer>() { @Override public void observe(Integer value) { v.setValue(value / 10); } });
+			int id = journal.attach(p, IJournalCodec.INTEGER);
+
+	        v.setValue(55);
+	        Map<Integer, IDynamicProperty<?>> replayed = journal.replay(start, journal.now());
+	        Assert.assertEquals(550, replayed.get(id).getValue());
+	    }
+
+		@Test
+	    public void nullValuesAreJournaled() {
+			ChangeJournal journal = ChangeJournal.allocate(16);
+			long start = journal.now();
+			IDynamicProperty<Integer> p = DynamicProperty.create(0);
+			int id = journal.attach(p, IJournalCodec.INTEGER);
+	        p.setValue(1);
+	        p.setValue(null);
+	        p.setValue(2);
+
+	        final ArrayList<Integer> seen = new ArrayList<Integer>();
+	        IDynamicProperty<Integer> target = DynamicProperty.create(0);
+	        target.subscribe(new IObserver<Integer>() { @Override public void observe(Integer value) { seen.add(value); } });
+	        Map<Integer, IDynamicProperty<?>> targets = new HashMap<Integer, IDynamicProperty<?>>();
+	        targets.put(id, target);
+
+	        journal.replay(start, journal.now(), targets);
+	        Assert.assertArrayEquals(new Integer[] { 1, null, 2 }, seen.toArray());
+	    }
+
+		@Test
+	    public void failingReadIsJournaledAsNull() {
+			ChangeJournal journal = ChangeJournal.allocate(16);
+			long start = journal.now();
+			final IDynamicProperty<Integer> v = DynamicProperty.create(1);
+	        IDynamicProperty<Integer> p = DynamicProperty.create(
+        		new java.util.concurrent.Callable<Integer>() { @Override public Integer call() throws Exception { return 10 / v.getValue(); } },
+        		new IObserver<Integer>() { @Override public void observe(Integer value) { /* noop */ } });
+			int id = journal.attach(p, IJournalCodec.INTEGER);
+
+	        v.setValue(0); // read throws, so p is set to null
+	        v.setValue(5);
+
+	        final ArrayList<Integer> seen = new ArrayList<Integer>();
+	        IDynamicProperty<Integer> target = DynamicProperty.create(0);
+	        target.subscribe(new IObserver<Integer>() { @Override public void observe(Integer value) { seen.add(value); } });
+	        Map<Integer, IDynamicProperty<?>> targets = new HashMap<Integer, IDynamicProperty<?>>();
+	        targets.put(id, target);
+
+	        journal.replay(start, journal.now(), targets);
+	        Assert.assertArrayEquals(new Integer[] { null, 2 }, seen.toArray());
+	    }
+
+		@Test
+	    public void mappedJournalResumesAfterReopen() throws IOException {
+			File file = File.createTempFile("journal", ".bin");
+			file.deleteOnExit();
+
+			ChangeJournal journal = ChangeJournal.map(file, 8);
+			long start = journal.now();
+			IDynamicProperty<Integer> p = DynamicProperty.create(0);
+			journal.attach(p, IJournalCodec.INTEGER);
+	        p.setValue(7);
+	        p.setValue(8);
+
+	        ChangeJournal reopened = ChangeJournal.map(file, 8);
+	        int id = reopened.attach(DynamicProperty.create(0), IJournalCodec.INTEGER);
+	        Assert.assertTrue(reopened.getSize() == 2);
+	        Assert.assertEquals(8, reopened.replay(start, reopened.now()).get(id).getValue());
+	    }
+
+		@Test
+	    public void timestampsAreAnchoredToTheWallClock() {
+			ChangeJournal journal = ChangeJournal.allocate(16);
+			IDynamicProperty<Integer> p = DynamicProperty.create(0);
+			int id = journal.attach(p, IJournalCodec.INTEGER);
+
+			long before = (System.currentTimeMillis() - 1000) * 1000000L;
+	        p.setValue(1);
+			long after = (System.currentTimeMillis() + 1000) * 1000000L;
+
+	        Assert.assertEquals(1, journal.replay(before, after).get(id).getValue());
+	    }
+
+		@Test(expected = IOException.class)
+	    public void reopeningWithADifferentCapacityIsRejected() throws IOException {
+			File file = File.createTempFile("journal", ".bin");
+			file.deleteOnExit();
+			ChangeJournal.map(file, 8);
+			ChangeJournal.map(file, 16);
+	    }
+
+		@Test(expected = IOException.class)
+	    public void mappingAFileThatIsNotAJournalIsRejected() throws IOException {
+			File file = File.createTempFile("journal", ".bin");
+			file.deleteOnExit();
+			RandomAccessFile raf = new RandomAccessFile(file, "rw");
+			raf.setLength(64 + 8 * 32);
+			raf.close();
+			ChangeJournal.map(file, 8);
+	    }
+
+		@Test(expected = IllegalArgumentException.class)
+	    public void capacityMustBeAPowerOfTwo() {
+			ChangeJournal.allocate(10);
+	    }
+}
@@ -0,0 +1,149 @@
+package developer;
+
+import java.util.concurrent.Callable;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+
+/// Tests that memoized calculated properties behave as calculated properties
+/// and serve repeated dependency states without calling read again
+public class TestSet3_MemoizedCalculatedProperties {
+
+		@Test
+	    public void readFunctionIsEvaluatedExactlyOnceDuringConstruction() {
+			final Integer[] evalCount = new Integer[] { 0 };
+			MemoizedDynamicProperty<Integer> p = DynamicProperty.createMemoized(
+        		new Callable<Integer>() { @Override public Integer call() throws Exception { return evalCount[0] = evalCount[0] + 1; } },
+        		new IObserver<Integer>() { @Override public void observe(Integer value) { Assert.fail("write method should not be called"); } },
+        		4);
+	        Assert.assertTrue(evalCount[0] == 1);
+	        Assert.assertTrue(p.getValue() == 1);
+	        Assert.assertTrue(p.getMissCount() == 1);
+	        Assert.assertTrue(p.getHitCount() == 0);
+	    }
+
+		@Test
+	    public void whenDependencyIsModifiedCalculatedPropertyIsReevaluated() {
+			final IDynamicProperty<Integer> v = DynamicProperty.create(42);
+			MemoizedDynamicProperty<Integer> p = DynamicProperty.createMemoized(
+        		new Callable<Integer>() { @Override public Integer call() throws Exception { return 10 * v.getValue(); } },
+        		new IObserver<Integer>() { @Override public void observe(Integer value) { v.setValue(value / 10); } },
+        		4);
+
+	        Assert.assertTrue(p.getValue() == 420);
+	        v.setValue(55);
+	        Assert.assertTrue(p.getValue() == 550);
+
+	        p.setValue(100);
+	        Assert.assertTrue(v.getValue() == 10);
+	        Assert.assertTrue(p.getValue() == 100);
+	    }
+
+		@Test
+	    public void repeatedDependencyValuesAreServedFromCache() {
+	    	final Integer[] evalCount = new Integer[] { 0 };
+			final IDynamicProperty<Integer> v = DynamicProperty.create(1);
+			MemoizedDynamicProperty<Integer> p = DynamicProperty.createMemoized(
+        		new Callable<Integer>() { @Override public Integer call() throws Exception { evalCount[0]++; return v.getValue() * 2; } },
+        		new IObserver<Integer>() { @Override public void observe(Integer value) { /* noop */ } },
+        		4);
+
+	        v.setValue(2);
+	        v.setValue(1);
+	        Assert.assertTrue(p.getValue() == 2);
+	        v.setValue(2);
+	        Assert.assertTrue(p.getValue() == 4);
+
+	        Assert.assertTrue(evalCount[0] == 2);
+	        Assert.assertTrue(p.getMissCount() == 2);
+	        Assert.assertTrue(p.getHitCount() == 2);
+	    }
+
+		@Test
+	    public void selectorFlipsReuseResultsAndDependencies() {
+	    	@SuppressWarnings("unchecked")
+	    	final IDynamicProperty<Integer>[] v = (IDynamicProperty<Integer>[])new IDynamicProperty[3];
+	    	v[0] = DynamicProperty.create(42);
+	    	v[1] = DynamicProperty.create(99);
+	    	v[2] = DynamicProperty.create(2012);
+	    	final Integer[] evalCount = new Integer[] { 0 };
+	        final IDynamicProperty<Integer> which = DynamicProperty.create(0);
+	        MemoizedDynamicProperty<Integer> p = DynamicProperty.createMemoized(
+        		new Callable<Integer>() { @Override public Integer call() throws Exception { evalCount[0]++; return v[which.getValue()].getValue(); } },
+        		new IObserver<Integer>() { @Override public void observe(Integer value) { v[which.getValue()].setValue(value); } },
+        		4);
+
+	        which.setValue(2);
+	        which.setValue(0);
+	        which.setValue(2);
+	        Assert.assertTrue(p.getValue() == 2012);
+	        Assert.assertTrue(evalCount[0] == 2);
+
+	        // subscriptions follow the remembered dependencies, not just the last read
+	        v[0].setValue(24);
+	        Assert.assertTrue(p.getValue() == 2012);
+	        v[2].setValue(3012);
+	        Assert.assertTrue(p.getValue() == 3012);
+	        Assert.assertTrue(evalCount[0] == 3);
+
+	        which.setValue(0);
+	        Assert.assertTrue(p.getValue() == 24);
+	        Assert.assertTrue(evalCount[0] == 4);
+	    }
+
+		@Test
+	    public void recoversWhenARememberedDependencyBecomesNull() {
+	    	@SuppressWarnings("unchecked")
+	    	final IDynamicProperty<Integer>[] v = (IDynamicProperty<Integer>[])new IDynamicProperty[3];
+	    	v[0] = DynamicProperty.create(42);
+	    	v[1] = DynamicProperty.create(99);
+	    	v[2] = DynamicProperty.create(2012);
+	        final IDynamicProperty<Integer> which = DynamicProperty.create(0);
+	        Callable<Integer> read = new Callable<Integer>() { @Override public Integer call() throws Exception { return v[which.getValue()].getValue(); } };
+	        IObserver<Integer> write = new IObserver<Integer>() { @Override public void observe(Integer value) { /* noop */ } };
+	        IDynamicProperty<Integer> plain = DynamicProperty.create(read, write);
+	        MemoizedDynamicProperty<Integer> p = DynamicProperty.createMemoized(read, write, 4);
+
+	        which.setValue(2);
+	        v[2].setValue(null);   // the snapshot for which == 2 can no longer be checked
+	        which.setValue(1);
+	        Assert.assertTrue(plain.getValue() == 99);
+	        Assert.assertTrue(p.getValue() == 99);
+
+	        // and it is still subscribed to its new dependencies
+	        v[1].setValue(100);
+	        Assert.assertTrue(plain.getValue() == 100);
+	        Assert.assertTrue(p.getValue() == 100);
+	    }
+
+		@Test
+	    public void leastRecentlyUsedResultIsEvicted() {
+	    	final Integer[] evalCount = new Integer[] { 0 };
+			final IDynamicProperty<Integer> v = DynamicProperty.create(0);
+			MemoizedDynamicProperty<Integer> p = DynamicProperty.createMemoized(
+        		new Callable<Integer>() { @Override public Integer call() throws Exception { evalCount[0]++; return v.getValue() + 1; } },
+        		new IObserver<Integer>() { @Override public void observe(Integer value) { /* noop */ } },
+        		2);
+
+	        v.setValue(1);   // cache holds 0, 1
+	        v.setValue(0);   // hit on 0, so 1 is now least recently used
+	        v.setValue(2);   // evicts 1
+	        Assert.assertTrue(p.getCacheSize() == 2);
+	        Assert.assertTrue(evalCount[0] == 3);
+
+	        v.setValue(0);
+	        Assert.assertTrue(evalCount[0] == 3);
+	        v.setValue(1);
+	        Assert.assertTrue(evalCount[0] == 4);
+	        Assert.assertTrue(p.getValue() == 2);
+	    }
+
+		@Test(expected = IllegalArgumentException.class)
+	    public void maxEntriesMustBePositive() {
+			DynamicProperty.createMemoized(
+        		new Callable<Integer>() { @Override public Integer call() throws Exception { return 1; } },
+        		new IObserver<Integer>() { @Override public void observe(Integer value) { /* noop */ } },
+        		0);
+	    }
+}
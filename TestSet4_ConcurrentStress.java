@@ -0,0 +1,44 @@
+package developer;
+
+import org.junit.Assert;
+import org.junit.Ignore;
+import org.junit.Test;
+
+
+/// Drives the stress harness over every graph shape
+/// Single-threaded runs check the generated graphs and the oracle agree,
+/// the concurrent soak is ignored until ConcreteDynamicProperty and DependencyListener are made thread-safe
+public class TestSet4_ConcurrentStress {
+
+		@Test
+	    public void generatedGraphsMatchOracleWhenBuilt() {
+			for(StressHarness.Shape shape : StressHarness.Shape.values())
+			{
+				StressHarness harness = new StressHarness(shape, 32, 42);
+				Assert.assertTrue(harness.getInputCount() > 0);
+				Assert.assertTrue(harness.getCalculatedCount() > 0);
+				Assert.assertEquals(shape.toString(), 0, harness.countMismatches());
+			}
+	    }
+
+		@Test
+	    public void singleWriterMatchesOracle() throws InterruptedException {
+			for(StressHarness.Shape shape : StressHarness.Shape.values())
+			{
+				StressHarness.Report report = new StressHarness(shape, 32, 42).run(1, 0, 2000, 60000);
+				Assert.assertTrue(report.toString(), report.isConsistent());
+				Assert.assertTrue(report.getWriteLatency(50) <= report.getWriteLatency(99));
+				Assert.assertTrue(report.getWritesPerSecond() > 0);
+			}
+	    }
+
+		@Test
+		@Ignore("lost updates and stale calculated values until the property graph is thread-safe")
+	    public void concurrentWritersAndReadersMatchOracle() throws InterruptedException {
+			for(StressHarness.Shape shape : StressHarness.Shape.values())
+			{
+				StressHarness.Report report = new StressHarness(shape, 64, 42).run(4, 4, 20000, 60000);
+				Assert.assertTrue(report.toString(), report.isConsistent());
+			}
+	    }
+}